@@ -0,0 +1,97 @@
+package com.sensormetrics.server.loadgen;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap and GC stats between consecutive samples, read from the server over JMX when a URL is given,
+ * otherwise from the local JVM
+ */
+class JvmStatsSampler implements AutoCloseable {
+
+    private static final long BYTES_IN_MB = 1024 * 1024;
+
+    private final String label;
+    private final JMXConnector connector;
+    private final MemoryMXBean memory;
+    private final List<GarbageCollectorMXBean> garbageCollectors;
+    private long lastGcCount;
+    private long lastGcMillis;
+
+    private JvmStatsSampler(String label, JMXConnector connector,
+                            MemoryMXBean memory, List<GarbageCollectorMXBean> garbageCollectors) {
+        this.label = label;
+        this.connector = connector;
+        this.memory = memory;
+        this.garbageCollectors = garbageCollectors;
+        sample();
+    }
+
+    static JvmStatsSampler create(LoadGeneratorConfig config) throws IOException {
+        if (config.jmxUrl == null) {
+            return new JvmStatsSampler(config.embedded ? "jvm (server+loadgen)" : "loadgen jvm", null,
+                    ManagementFactory.getMemoryMXBean(), ManagementFactory.getGarbageCollectorMXBeans());
+        }
+        JMXConnector connector = JMXConnectorFactory.connect(new JMXServiceURL(config.jmxUrl));
+        try {
+            MBeanServerConnection connection = connector.getMBeanServerConnection();
+            MemoryMXBean memory = ManagementFactory.newPlatformMXBeanProxy(
+                    connection, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class);
+            List<GarbageCollectorMXBean> garbageCollectors = new ArrayList<>();
+            for (ObjectName name : connection.queryNames(
+                    new ObjectName(ManagementFactory.GARBAGE_COLLECTOR_MXBEAN_DOMAIN_TYPE + ",*"), null)) {
+                garbageCollectors.add(ManagementFactory.newPlatformMXBeanProxy(
+                        connection, name.getCanonicalName(), GarbageCollectorMXBean.class));
+            }
+            return new JvmStatsSampler("server jvm", connector, memory, garbageCollectors);
+        } catch (IOException | RuntimeException e) {
+            connector.close();
+            throw e;
+        } catch (Exception e) {
+            connector.close();
+            throw new IOException("Could not read JVM stats from: " + config.jmxUrl, e);
+        }
+    }
+
+    /**
+     * Returns the current heap and the GC activity since the previous call
+     */
+    String sample() {
+        try {
+            MemoryUsage heap = memory.getHeapMemoryUsage();
+            long previousGcCount = lastGcCount;
+            long previousGcMillis = lastGcMillis;
+            long gcCount = 0;
+            long gcMillis = 0;
+            for (GarbageCollectorMXBean gc : garbageCollectors) {
+                gcCount += Math.max(0, gc.getCollectionCount());
+                gcMillis += Math.max(0, gc.getCollectionTime());
+            }
+            lastGcCount = gcCount;
+            lastGcMillis = gcMillis;
+            return String.format("%s heap=%d/%dMB gc=%d (%dms)", label,
+                    heap.getUsed() / BYTES_IN_MB, heap.getCommitted() / BYTES_IN_MB,
+                    gcCount - previousGcCount, gcMillis - previousGcMillis);
+        } catch (RuntimeException e) {
+            // Remote proxies wrap connection failures, the run goes on without JVM stats
+            return label + " stats unavailable: " + e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (connector != null) {
+            connector.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.sensormetrics.server.loadgen;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous HTTP client shared by all simulated sensors and queries.
+ * Latency is measured from the moment a request was meant to be sent rather than when it actually left,
+ * so a stalled server shows up in the percentiles instead of silently slowing the generator down.
+ */
+class LoadClient {
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final Duration requestTimeout;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    LoadClient(LoadGeneratorConfig config, Executor executor) {
+        this.httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofMillis(config.requestTimeoutMillis))
+                .build();
+        this.baseUrl = config.baseUrl;
+        this.requestTimeout = Duration.ofMillis(config.requestTimeoutMillis);
+        this.maxInFlight = config.maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    void post(String path, OperationStats stats, long intendedNanos) {
+        send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .POST(HttpRequest.BodyPublishers.noBody()), stats, intendedNanos);
+    }
+
+    void get(String path, OperationStats stats, long intendedNanos) {
+        send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET(), stats, intendedNanos);
+    }
+
+    private void send(HttpRequest.Builder builder, OperationStats stats, long intendedNanos) {
+        if (!inFlight.tryAcquire()) {
+            stats.recordSkipped(TimeUnit.MILLISECONDS.toMicros(requestTimeout.toMillis()));
+            return;
+        }
+        httpClient.sendAsync(builder.timeout(requestTimeout).build(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    inFlight.release();
+                    long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos);
+                    if (error != null || response.statusCode() >= 400) {
+                        stats.recordError(latencyMicros);
+                    } else {
+                        stats.recordSuccess(latencyMicros);
+                    }
+                });
+    }
+
+    /**
+     * Waits for the requests still in flight, giving up after the given timeout
+     */
+    boolean awaitInFlight(long timeoutMillis) throws InterruptedException {
+        if (inFlight.tryAcquire(maxInFlight, timeoutMillis, TimeUnit.MILLISECONDS)) {
+            inFlight.release(maxInFlight);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,138 @@
+package com.sensormetrics.server.loadgen;
+
+import com.sensormetrics.server.StartSensorMetricsServer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load and soak test harness: simulates a fleet of sensors posting temperatures while concurrently running
+ * the daily/weekly query mix, and reports throughput, latency percentiles, error rates and heap/GC stats
+ * every report interval and for the whole run.
+ * <p>
+ * Runs against an already started server, or with '--embedded=true' starts one inside this JVM.
+ * See README for the available arguments.
+ */
+public class LoadGenerator {
+
+    private static final long IN_FLIGHT_DRAIN_MILLIS = 10_000;
+
+    private final LoadGeneratorConfig config;
+    private final OperationStats ingestStats = new OperationStats("ingest");
+    private final OperationStats lateIngestStats = new OperationStats("ingest_late");
+    private final OperationStats dailyStats = new OperationStats("daily");
+    private final OperationStats weeklySensorStats = new OperationStats("weekly_sensor");
+    private final OperationStats weeklyAllStats = new OperationStats("weekly_all");
+    private final List<OperationStats> allStats =
+            List.of(ingestStats, lateIngestStats, dailyStats, weeklySensorStats, weeklyAllStats);
+    private volatile boolean running = true;
+    private volatile double ratePerSensor;
+    private JvmStatsSampler jvmStats;
+
+    LoadGenerator(LoadGeneratorConfig config) {
+        this.config = config;
+        this.ratePerSensor = config.ratePerSensor;
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        LoadGeneratorConfig config = LoadGeneratorConfig.fromArgs(args);
+        ConfigurableApplicationContext server = null;
+        if (config.embedded) {
+            server = SpringApplication.run(StartSensorMetricsServer.class, "--server.port=" + config.port);
+        }
+        boolean passed;
+        try {
+            passed = new LoadGenerator(config).run();
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Runs the load for the configured duration and returns whether the run stayed within the thresholds
+     */
+    boolean run() throws InterruptedException, IOException {
+        try (JvmStatsSampler sampler = JvmStatsSampler.create(config)) {
+            jvmStats = sampler;
+            return runLoad();
+        }
+    }
+
+    private boolean runLoad() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(config.threads);
+        ExecutorService httpExecutor = Executors.newFixedThreadPool(config.threads);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        LoadClient client = new LoadClient(config, httpExecutor);
+
+        System.out.println("Starting load: " + config.sensors + " sensors at " + ratePerSensor +
+                " readings/s each (" + config.arrival + "), " + config.queryRate + " queries/s, for " +
+                config.durationSeconds + "s against " + config.baseUrl);
+        long startNanos = System.nanoTime();
+        jvmStats.sample();
+        for (int sensorId = 1; sensorId <= config.sensors; sensorId++) {
+            new SensorSimulator(sensorId, config, client, ingestStats, lateIngestStats,
+                    scheduler, () -> ratePerSensor, () -> running).start();
+        }
+        new QuerySimulator(config, client, dailyStats, weeklySensorStats, weeklyAllStats,
+                scheduler, () -> running).start();
+        if (config.rampStepRate > 0) {
+            reporter.scheduleAtFixedRate(this::rampUp,
+                    config.rampIntervalSeconds, config.rampIntervalSeconds, TimeUnit.SECONDS);
+        }
+        reporter.scheduleAtFixedRate(() -> reportInterval(startNanos),
+                config.reportIntervalSeconds, config.reportIntervalSeconds, TimeUnit.SECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.durationSeconds));
+        running = false;
+        reporter.shutdown();
+        reporter.awaitTermination(config.reportIntervalSeconds, TimeUnit.SECONDS);
+        scheduler.shutdownNow();
+        if (!client.awaitInFlight(IN_FLIGHT_DRAIN_MILLIS)) {
+            System.out.println("Some requests were still in flight when the run ended, they are not counted");
+        }
+        httpExecutor.shutdownNow();
+        return reportSummary(startNanos);
+    }
+
+    private void rampUp() {
+        ratePerSensor += config.rampStepRate;
+        System.out.println("Ramping up to " + String.format("%.2f", ratePerSensor) + " readings/s per sensor (" +
+                String.format("%.1f", ratePerSensor * config.sensors) + " offered readings/s)");
+    }
+
+    private void reportInterval(long startNanos) {
+        long elapsedSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+        System.out.println(String.format("[%5ds] offered=%.1f readings/s  %s",
+                elapsedSeconds, ratePerSensor * config.sensors, jvmStats.sample()));
+        allStats.forEach(stats -> System.out.println("    " + stats.rollInterval(config.reportIntervalSeconds)));
+    }
+
+    private boolean reportSummary(long startNanos) {
+        double elapsedSeconds = (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        System.out.println(String.format("Summary after %.1fs  %s", elapsedSeconds, jvmStats.sample()));
+        boolean passed = true;
+        for (OperationStats stats : allStats) {
+            OperationStats.Snapshot total = stats.total(elapsedSeconds);
+            System.out.println("    " + total);
+            if (total.getFailureRate() > config.maxErrorRate) {
+                System.out.println("    '" + total.name + "' failure rate (errors and skipped) exceeded the allowed " +
+                        config.maxErrorRate);
+                passed = false;
+            }
+            if (total.p99Millis > config.maxP99Millis) {
+                System.out.println("    '" + total.name + "' p99 latency exceeded the allowed " + config.maxP99Millis + "ms");
+                passed = false;
+            }
+        }
+        return passed;
+    }
+}
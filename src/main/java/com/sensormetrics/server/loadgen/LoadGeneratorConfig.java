@@ -0,0 +1,128 @@
+package com.sensormetrics.server.loadgen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load generator settings, parsed from '--key=value' command line arguments.
+ * Every setting is optional and falls back to the default below.
+ */
+class LoadGeneratorConfig {
+
+    // Matches TemperatureService.SENSORS_ID_RANGE, the server rejects readings of any sensor ID above it
+    static final int MAX_SENSORS = 100;
+
+    enum Arrival { CONSTANT, POISSON }
+
+    enum TempDistribution { UNIFORM, GAUSSIAN }
+
+    String baseUrl = "http://localhost:8080";
+    // Boots the server inside the load generator JVM, so the heap/GC stats reported cover both
+    boolean embedded = false;
+    int port = 8080;
+    // Reads heap/GC stats from the server's JVM over JMX, e.g. service:jmx:rmi:///jndi/rmi://localhost:9010/jmxrmi
+    String jmxUrl = null;
+
+    int sensors = 100;
+    double ratePerSensor = 1.0;
+    Arrival arrival = Arrival.POISSON;
+    TempDistribution tempDistribution = TempDistribution.GAUSSIAN;
+    short tempMin = -20;
+    short tempMax = 45;
+    double tempMean = 22;
+    double tempStdDev = 5;
+
+    // Chance of a sensor tick turning into a burst of 'burstSize' readings sent back to back
+    double burstProbability = 0.0;
+    int burstSize = 20;
+    // Share of readings held back for up to 'maxLatenessMillis', so they reach the server late and out of order
+    double lateFraction = 0.0;
+    long maxLatenessMillis = 5000;
+
+    // Total daily/weekly queries per second, spread evenly over all query endpoints
+    double queryRate = 5.0;
+
+    long durationSeconds = 60;
+    long reportIntervalSeconds = 5;
+    // Per sensor rate added every 'rampIntervalSeconds', used to look for the saturation point
+    double rampStepRate = 0.0;
+    long rampIntervalSeconds = 30;
+
+    int threads = 4;
+    int maxInFlight = 512;
+    long requestTimeoutMillis = 5000;
+    Long seed = null;
+
+    // Exit with a non zero code when the whole run exceeds these, so the generator can gate a deployment.
+    // Requests skipped at the in-flight limit count as failures, recorded with the request timeout as latency
+    double maxErrorRate = 1.0;
+    double maxP99Millis = Double.MAX_VALUE;
+
+    static LoadGeneratorConfig fromArgs(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected '--key=value' argument but got: '" + arg + "'");
+            }
+            int separator = arg.indexOf('=');
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        LoadGeneratorConfig config = new LoadGeneratorConfig();
+        config.baseUrl = values.getOrDefault("base-url", config.baseUrl);
+        config.embedded = Boolean.parseBoolean(values.getOrDefault("embedded", String.valueOf(config.embedded)));
+        config.port = Integer.parseInt(values.getOrDefault("port", String.valueOf(config.port)));
+        if (config.embedded && !values.containsKey("base-url")) {
+            config.baseUrl = "http://localhost:" + config.port;
+        }
+        config.sensors = Integer.parseInt(values.getOrDefault("sensors", String.valueOf(config.sensors)));
+        config.ratePerSensor = Double.parseDouble(values.getOrDefault("rate-per-sensor", String.valueOf(config.ratePerSensor)));
+        config.arrival = Arrival.valueOf(values.getOrDefault("arrival", config.arrival.name()).toUpperCase());
+        config.tempDistribution = TempDistribution.valueOf(
+                values.getOrDefault("temp-distribution", config.tempDistribution.name()).toUpperCase());
+        config.tempMin = Short.parseShort(values.getOrDefault("temp-min", String.valueOf(config.tempMin)));
+        config.tempMax = Short.parseShort(values.getOrDefault("temp-max", String.valueOf(config.tempMax)));
+        config.tempMean = Double.parseDouble(values.getOrDefault("temp-mean", String.valueOf(config.tempMean)));
+        config.tempStdDev = Double.parseDouble(values.getOrDefault("temp-std-dev", String.valueOf(config.tempStdDev)));
+        config.burstProbability = Double.parseDouble(values.getOrDefault("burst-probability", String.valueOf(config.burstProbability)));
+        config.burstSize = Integer.parseInt(values.getOrDefault("burst-size", String.valueOf(config.burstSize)));
+        config.lateFraction = Double.parseDouble(values.getOrDefault("late-fraction", String.valueOf(config.lateFraction)));
+        config.maxLatenessMillis = Long.parseLong(values.getOrDefault("max-lateness-millis", String.valueOf(config.maxLatenessMillis)));
+        config.queryRate = Double.parseDouble(values.getOrDefault("query-rate", String.valueOf(config.queryRate)));
+        config.durationSeconds = Long.parseLong(values.getOrDefault("duration-seconds", String.valueOf(config.durationSeconds)));
+        config.reportIntervalSeconds = Long.parseLong(values.getOrDefault("report-interval-seconds", String.valueOf(config.reportIntervalSeconds)));
+        config.rampStepRate = Double.parseDouble(values.getOrDefault("ramp-step-rate", String.valueOf(config.rampStepRate)));
+        config.rampIntervalSeconds = Long.parseLong(values.getOrDefault("ramp-interval-seconds", String.valueOf(config.rampIntervalSeconds)));
+        config.threads = Integer.parseInt(values.getOrDefault("threads", String.valueOf(config.threads)));
+        config.maxInFlight = Integer.parseInt(values.getOrDefault("max-in-flight", String.valueOf(config.maxInFlight)));
+        config.requestTimeoutMillis = Long.parseLong(values.getOrDefault("request-timeout-millis", String.valueOf(config.requestTimeoutMillis)));
+        config.jmxUrl = values.getOrDefault("jmx-url", config.jmxUrl);
+        if (values.containsKey("seed")) {
+            config.seed = Long.parseLong(values.get("seed"));
+        }
+        config.maxErrorRate = Double.parseDouble(values.getOrDefault("max-error-rate", String.valueOf(config.maxErrorRate)));
+        config.maxP99Millis = Double.parseDouble(values.getOrDefault("max-p99-millis", String.valueOf(config.maxP99Millis)));
+        config.validate();
+        return config;
+    }
+
+    private void validate() {
+        if (sensors < 1 || sensors > MAX_SENSORS) {
+            throw new IllegalArgumentException("'sensors' must be between 1 and " + MAX_SENSORS);
+        }
+        if (ratePerSensor <= 0 || reportIntervalSeconds <= 0 || durationSeconds <= 0 || rampIntervalSeconds <= 0) {
+            throw new IllegalArgumentException("Rates, durations and intervals must be positive");
+        }
+        if (tempMin > tempMax) {
+            throw new IllegalArgumentException("'temp-min' must not be greater than 'temp-max'");
+        }
+        if (burstProbability < 0 || burstProbability > 1 || lateFraction < 0 || lateFraction > 1) {
+            throw new IllegalArgumentException("'burst-probability' and 'late-fraction' must be between 0 and 1");
+        }
+        if (threads < 1 || maxInFlight < 1 || burstSize < 1) {
+            throw new IllegalArgumentException("'threads', 'max-in-flight' and 'burst-size' must be at least 1");
+        }
+        if (queryRate < 0) {
+            throw new IllegalArgumentException("'query-rate' must not be negative");
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.sensormetrics.server.loadgen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Latencies and error counters of a single operation type, kept both per report interval and for the whole run.
+ * Samples are recorded straight into the run totals as well, so a sample racing with an interval rollover
+ * can at most land in a closed interval but is never lost from the totals.
+ */
+class OperationStats {
+
+    private final String name;
+    private final AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+    private final LatencyHistogram cumulative = new LatencyHistogram();
+    private final AtomicLong intervalErrors = new AtomicLong();
+    private final AtomicLong intervalSkipped = new AtomicLong();
+    private final AtomicLong totalErrors = new AtomicLong();
+    private final AtomicLong totalSkipped = new AtomicLong();
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    void recordSuccess(long latencyMicros) {
+        recordLatency(latencyMicros);
+    }
+
+    void recordError(long latencyMicros) {
+        recordLatency(latencyMicros);
+        intervalErrors.incrementAndGet();
+        totalErrors.incrementAndGet();
+    }
+
+    /**
+     * Counts a request that was never sent because the client reached its in-flight limit.
+     * It is recorded with the given latency (the request timeout), so shed load shows in the percentiles.
+     */
+    void recordSkipped(long latencyMicros) {
+        recordLatency(latencyMicros);
+        intervalSkipped.incrementAndGet();
+        totalSkipped.incrementAndGet();
+    }
+
+    private void recordLatency(long latencyMicros) {
+        interval.get().record(latencyMicros);
+        cumulative.record(latencyMicros);
+    }
+
+    /**
+     * Closes the current interval and returns its snapshot
+     */
+    Snapshot rollInterval(double elapsedSeconds) {
+        LatencyHistogram closed = interval.getAndSet(new LatencyHistogram());
+        return new Snapshot(name, closed, intervalErrors.getAndSet(0), intervalSkipped.getAndSet(0), elapsedSeconds);
+    }
+
+    Snapshot total(double elapsedSeconds) {
+        return new Snapshot(name, cumulative, totalErrors.get(), totalSkipped.get(), elapsedSeconds);
+    }
+
+    static class Snapshot {
+
+        final String name;
+        final long count;
+        final long errors;
+        final long skipped;
+        final double throughput;
+        final double p50Millis;
+        final double p90Millis;
+        final double p99Millis;
+        final double maxMillis;
+
+        private Snapshot(String name, LatencyHistogram histogram, long errors, long skipped, double elapsedSeconds) {
+            this.name = name;
+            this.count = histogram.getTotalCount();
+            this.errors = errors;
+            this.skipped = skipped;
+            // Skipped requests never reached the server, so they are left out of the throughput
+            this.throughput = elapsedSeconds > 0 ? (count - skipped) / elapsedSeconds : 0;
+            this.p50Millis = histogram.getValueAtPercentile(50) / 1000.0;
+            this.p90Millis = histogram.getValueAtPercentile(90) / 1000.0;
+            this.p99Millis = histogram.getValueAtPercentile(99) / 1000.0;
+            this.maxMillis = histogram.getMax() / 1000.0;
+        }
+
+        /**
+         * Share of requests that failed or were skipped, skipped ones being part of 'count'
+         */
+        double getFailureRate() {
+            return count == 0 ? 0 : (double) (errors + skipped) / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-13s %9.1f req/s  p50=%8.2fms  p90=%8.2fms  p99=%8.2fms  max=%8.2fms  " +
+                            "errors=%d  skipped=%d  failed=%.2f%%",
+                    name, throughput, p50Millis, p90Millis, p99Millis, maxMillis,
+                    errors, skipped, getFailureRate() * 100);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.sensormetrics.server.loadgen;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Issues the daily and weekly query mix against the sensors of the simulated fleet, as Poisson arrivals
+ */
+class QuerySimulator {
+
+    private static final String[] DAILY_QUERIES = {"daily_max", "daily_min", "daily_avg"};
+    private static final String[] WEEKLY_QUERIES = {"weekly_max", "weekly_min", "weekly_avg"};
+    private static final int DAYS_TO_QUERY = 7;
+
+    private final LoadGeneratorConfig config;
+    private final LoadClient client;
+    private final OperationStats dailyStats;
+    private final OperationStats weeklySensorStats;
+    private final OperationStats weeklyAllStats;
+    private final ScheduledExecutorService scheduler;
+    private final BooleanSupplier running;
+    private final Random random;
+    private long nextQueryNanos;
+
+    QuerySimulator(LoadGeneratorConfig config, LoadClient client,
+                   OperationStats dailyStats, OperationStats weeklySensorStats, OperationStats weeklyAllStats,
+                   ScheduledExecutorService scheduler, BooleanSupplier running) {
+        this.config = config;
+        this.client = client;
+        this.dailyStats = dailyStats;
+        this.weeklySensorStats = weeklySensorStats;
+        this.weeklyAllStats = weeklyAllStats;
+        this.scheduler = scheduler;
+        this.running = running;
+        this.random = config.seed != null ? new Random(config.seed - 1) : new Random();
+    }
+
+    void start() {
+        if (config.queryRate <= 0) {
+            return;
+        }
+        nextQueryNanos = System.nanoTime();
+        scheduler.execute(this::query);
+    }
+
+    private void query() {
+        if (!running.getAsBoolean()) {
+            return;
+        }
+        long intendedNanos = nextQueryNanos;
+        int sensorId = 1 + random.nextInt(config.sensors);
+        // Daily queries, weekly per sensor queries and weekly fleet queries get an equal share of the mix
+        switch (random.nextInt(3)) {
+            case 0:
+                String date = LocalDate.now().minusDays(random.nextInt(DAYS_TO_QUERY)).toString();
+                client.get("/temperature/" + pick(DAILY_QUERIES) + "/" + sensorId + "/" + date, dailyStats, intendedNanos);
+                break;
+            case 1:
+                client.get("/temperature/" + pick(WEEKLY_QUERIES) + "/" + sensorId, weeklySensorStats, intendedNanos);
+                break;
+            default:
+                client.get("/temperature/" + pick(WEEKLY_QUERIES), weeklyAllStats, intendedNanos);
+        }
+        double periodNanos = TimeUnit.SECONDS.toNanos(1) / config.queryRate;
+        nextQueryNanos += (long) (-Math.log(1 - random.nextDouble()) * periodNanos);
+        scheduler.schedule(this::query, Math.max(0, nextQueryNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private String pick(String[] queries) {
+        return queries[random.nextInt(queries.length)];
+    }
+}
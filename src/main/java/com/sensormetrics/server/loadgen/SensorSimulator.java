@@ -0,0 +1,92 @@
+package com.sensormetrics.server.loadgen;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A single synthetic sensor posting temperatures at the configured rate, with optional bursts and late readings.
+ * Ticks are scheduled against the ideal timeline, so falling behind never lowers the offered load.
+ */
+class SensorSimulator {
+
+    private final int sensorId;
+    private final LoadGeneratorConfig config;
+    private final LoadClient client;
+    private final OperationStats ingestStats;
+    private final OperationStats lateIngestStats;
+    private final ScheduledExecutorService scheduler;
+    private final DoubleSupplier ratePerSensor;
+    private final BooleanSupplier running;
+    private final Random random;
+    private long nextTickNanos;
+
+    SensorSimulator(int sensorId, LoadGeneratorConfig config, LoadClient client,
+                    OperationStats ingestStats, OperationStats lateIngestStats,
+                    ScheduledExecutorService scheduler, DoubleSupplier ratePerSensor, BooleanSupplier running) {
+        this.sensorId = sensorId;
+        this.config = config;
+        this.client = client;
+        this.ingestStats = ingestStats;
+        this.lateIngestStats = lateIngestStats;
+        this.scheduler = scheduler;
+        this.ratePerSensor = ratePerSensor;
+        this.running = running;
+        this.random = config.seed != null ? new Random(config.seed + sensorId) : new Random();
+    }
+
+    void start() {
+        // Spread the first tick over one period so the fleet does not fire in lock step
+        long firstDelayNanos = (long) (random.nextDouble() * periodNanos());
+        nextTickNanos = System.nanoTime() + firstDelayNanos;
+        scheduler.schedule(this::tick, firstDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void tick() {
+        if (!running.getAsBoolean()) {
+            return;
+        }
+        long intendedNanos = nextTickNanos;
+        int readings = random.nextDouble() < config.burstProbability ? config.burstSize : 1;
+        for (int i = 0; i < readings; i++) {
+            String path = "/temperature/" + sensorId + "/" + nextTemperature();
+            if (random.nextDouble() < config.lateFraction) {
+                long latenessMillis = (long) (random.nextDouble() * config.maxLatenessMillis);
+                scheduler.schedule(() -> sendLate(path), latenessMillis, TimeUnit.MILLISECONDS);
+            } else {
+                client.post(path, ingestStats, intendedNanos);
+            }
+        }
+        nextTickNanos += nextIntervalNanos();
+        scheduler.schedule(this::tick, Math.max(0, nextTickNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private void sendLate(String path) {
+        if (running.getAsBoolean()) {
+            client.post(path, lateIngestStats, System.nanoTime());
+        }
+    }
+
+    private short nextTemperature() {
+        double temp;
+        if (config.tempDistribution == LoadGeneratorConfig.TempDistribution.GAUSSIAN) {
+            temp = config.tempMean + random.nextGaussian() * config.tempStdDev;
+        } else {
+            temp = config.tempMin + random.nextDouble() * (config.tempMax - config.tempMin + 1);
+        }
+        return (short) Math.max(config.tempMin, Math.min(config.tempMax, Math.floor(temp)));
+    }
+
+    private long nextIntervalNanos() {
+        if (config.arrival == LoadGeneratorConfig.Arrival.POISSON) {
+            return (long) (-Math.log(1 - random.nextDouble()) * periodNanos());
+        }
+        return (long) periodNanos();
+    }
+
+    private double periodNanos() {
+        return TimeUnit.SECONDS.toNanos(1) / ratePerSensor.getAsDouble();
+    }
+}
@@ -3,9 +3,13 @@ package com.sensormetrics.server.storage.filesystem;
 import com.sensormetrics.server.models.HourlyTempModel;
 import com.sensormetrics.server.storage.TemperatureStorageProvider;
 import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.apache.commons.io.FileUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -17,24 +21,136 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 @Repository
 public class FileSystemStore implements TemperatureStorageProvider {
 
     private final String SLASH = System.getProperty("os.name").toLowerCase().contains("win") ? "\\" : "/";
-    private final String FS_STORE_PATH = System.getProperty("user.home") + SLASH + "sensordata";
-    private final String TEMPERATURES_PATH = FS_STORE_PATH + SLASH + "temperature";
+    private final String FS_STORE_PATH;
+    private final String TEMPERATURES_PATH;
+
+    private final WriteAheadLog writeAheadLog;
+    private final long checkpointIntervalSeconds;
+    private final ScheduledExecutorService checkpointScheduler = Executors.newSingleThreadScheduledExecutor();
+    // Directories whose entries changed since the last checkpoint, synced before the log segments covering them are dropped
+    private final Set<Path> unsyncedDirectories = ConcurrentHashMap.newKeySet();
+    // Saves hold the read lock across log append and file write, so a segment is only sealed with all its files written
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+    @Autowired
+    public FileSystemStore(WriteAheadLog writeAheadLog,
+                           @Value("${sensordata.path:${user.home}/sensordata}") String storePath,
+                           @Value("${sensordata.wal.checkpoint-interval-seconds:60}") long checkpointIntervalSeconds) {
+        this.FS_STORE_PATH = storePath;
+        this.TEMPERATURES_PATH = FS_STORE_PATH + SLASH + "temperature";
+        this.writeAheadLog = writeAheadLog;
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+    }
+
+    /**
+     * Replays readings left in the write-ahead log by a previous run before any reads are served,
+     * so the service caches built on top of this store already include them
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Path temperaturesPath = Paths.get(TEMPERATURES_PATH);
+        Files.createDirectories(temperaturesPath);
+        // The store's own directories are never synced by checkpoints, so their first creation is made durable here
+        for (Path directory = temperaturesPath.getParent(); directory != null; directory = directory.getParent()) {
+            WriteAheadLog.forceDirectory(directory);
+        }
+        writeAheadLog.recover(this::writeTemperatureFile);
+        checkpoint();
+        scheduleCheckpoint();
+    }
+
+    private void scheduleCheckpoint() {
+        checkpointScheduler.scheduleWithFixedDelay(this::checkpointSafely,
+                checkpointIntervalSeconds,
+                checkpointIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic checkpoint and runs a last one while the write-ahead log is still open
+     */
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        stopCheckpoints();
+        checkpoint();
+    }
+
+    void stopCheckpoints() throws InterruptedException {
+        checkpointScheduler.shutdown();
+        checkpointScheduler.awaitTermination(checkpointIntervalSeconds, TimeUnit.SECONDS);
+    }
 
     @Override
     public void saveTemperature(long sensorId, short temp) throws IOException {
-        FileUtils.write(
-                new File(TEMPERATURES_PATH + SLASH + sensorId + SLASH +
-                        java.time.LocalDate.now() + SLASH + new DateTime().hourOfDay().get() + SLASH + temp),
-                null, Charset.defaultCharset());
+        WalRecord record = new WalRecord(System.currentTimeMillis(), sensorId, temp);
+        checkpointLock.readLock().lock();
+        try {
+            writeAheadLog.append(record);
+            writeTemperatureFile(record);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
         System.out.println("Created new file for sensor: '" + sensorId + "' with temperature: '" + temp + "'");
     }
 
+    private void writeTemperatureFile(WalRecord record) throws IOException {
+        DateTime dateTime = new DateTime(record.getTimestampMillis());
+        File temperatureFile = new File(TEMPERATURES_PATH + SLASH + record.getSensorId() + SLASH +
+                dateTime.toLocalDate() + SLASH + dateTime.getHourOfDay() + SLASH + record.getTemp());
+        FileUtils.write(temperatureFile, null, Charset.defaultCharset());
+        Path rootPath = Paths.get(TEMPERATURES_PATH);
+        for (Path directory = temperatureFile.toPath().getParent();
+             directory != null && directory.startsWith(rootPath);
+             directory = directory.getParent()) {
+            unsyncedDirectories.add(directory);
+        }
+    }
+
+    /**
+     * Seals the current log segment, makes the files written for it durable and drops the sealed segments.
+     * If a directory fails to sync the sealed segments are kept, to be replayed on the next startup.
+     */
+    private synchronized void checkpoint() throws IOException {
+        long sealedSequence;
+        checkpointLock.writeLock().lock();
+        try {
+            sealedSequence = writeAheadLog.rollSegment();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        for (Path directory : unsyncedDirectories) {
+            unsyncedDirectories.remove(directory);
+            try {
+                WriteAheadLog.forceDirectory(directory);
+            } catch (IOException e) {
+                unsyncedDirectories.add(directory);
+                throw e;
+            }
+        }
+        writeAheadLog.deleteSegmentsUpTo(sealedSequence);
+    }
+
+    private void checkpointSafely() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            String msg = "Error occurred while checkpointing the write-ahead log";
+            System.out.println(msg);
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Returns a map comprised of <sensorId, <hours> --> list<temperature>>
      */
@@ -88,8 +204,16 @@ public class FileSystemStore implements TemperatureStorageProvider {
     private Map<Integer, HourlyTempModel> convertPathListToSensorKeyMap(int sensorId, List<String> list) {
         HashMap<Integer, HourlyTempModel> SensorIdHourlyTempMap = new HashMap<>();
         list.forEach(item -> {
-            short hour = Short.parseShort(item.substring(1, nthLastIndexOfSlash(1, item)));
-            short temp = Short.parseShort(item.substring(item.lastIndexOf(SLASH) + 1));
+            short hour;
+            short temp;
+            try {
+                hour = Short.parseShort(item.substring(1, nthLastIndexOfSlash(1, item)));
+                temp = Short.parseShort(item.substring(item.lastIndexOf(SLASH) + 1));
+            } catch (NumberFormatException e) {
+                // A foreign or stray file (e.g. created by hand or by the OS), not one of the stored temperatures
+                System.out.println("Skipping unexpected file in sensor '" + sensorId + "' directory: " + item);
+                return;
+            }
             if (!SensorIdHourlyTempMap.containsKey(sensorId)) {
                 addNewSensorEntry(sensorId, SensorIdHourlyTempMap, hour, temp);
             } else {
@@ -0,0 +1,20 @@
+package com.sensormetrics.server.storage.filesystem;
+
+import lombok.Getter;
+
+/**
+ * A single temperature reading as written to the write-ahead log
+ */
+@Getter
+public class WalRecord {
+
+    private final long timestampMillis;
+    private final long sensorId;
+    private final short temp;
+
+    public WalRecord(long timestampMillis, long sensorId, short temp) {
+        this.timestampMillis = timestampMillis;
+        this.sensorId = sensorId;
+        this.temp = temp;
+    }
+}
@@ -0,0 +1,376 @@
+package com.sensormetrics.server.storage.filesystem;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append only log of temperature readings, split into numbered segment files.
+ * <p>
+ * Every record is written as [payload length][CRC32 of payload][timestamp, sensorId, temp].
+ * Appends reach the OS right away, so they survive a process crash, while fsync is batched every
+ * 'fsyncBatchRecords' records or 'fsyncIntervalMillis', which bounds what an OS crash or power loss can lose.
+ * On startup {@link #recover} replays all segments and truncates a torn tail left by a crash mid-write.
+ * A failed fsync stops the log for good, as the OS may already have dropped the unsynced pages.
+ */
+@Component
+public class WriteAheadLog {
+
+    public interface RecordReplay {
+        void replay(WalRecord record) throws IOException;
+    }
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d{20})\\.log");
+    private static final String LOCK_FILE_NAME = "wal.lock";
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    private static final int PAYLOAD_BYTES = Long.BYTES * 2 + Short.BYTES;
+
+    private final Path walDirectory;
+    private final long fsyncIntervalMillis;
+    private final int fsyncBatchRecords;
+    private final ScheduledExecutorService fsyncScheduler = Executors.newSingleThreadScheduledExecutor();
+    private FileChannel segment;
+    private long segmentSequence;
+    private int unsyncedRecords;
+    private FileChannel lockChannel;
+    private IOException syncFailure;
+
+    @Autowired
+    public WriteAheadLog(@Value("${sensordata.wal.path:${user.home}/sensordata/wal}") String walPath,
+                         @Value("${sensordata.wal.fsync-interval-millis:200}") long fsyncIntervalMillis,
+                         @Value("${sensordata.wal.fsync-batch-records:500}") int fsyncBatchRecords) {
+        this.walDirectory = Paths.get(walPath);
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.fsyncBatchRecords = fsyncBatchRecords;
+    }
+
+    /**
+     * Replays every record found in the existing segments, truncating any torn or corrupted tail,
+     * then opens a new segment for appends. Must be called once, before the first append.
+     *
+     * @return number of replayed records
+     */
+    public synchronized int recover(RecordReplay replay) throws IOException {
+        if (segment != null) {
+            throw new IllegalStateException("Write-ahead log was already recovered");
+        }
+        Files.createDirectories(walDirectory);
+        lockDirectory();
+        int replayed = 0;
+        long lastSequence = 0;
+        for (Path segmentPath : listSegments()) {
+            replayed += replaySegment(segmentPath, replay);
+            lastSequence = sequenceOf(segmentPath);
+        }
+        openSegment(lastSequence + 1);
+        fsyncScheduler.scheduleWithFixedDelay(this::syncIfNeeded,
+                fsyncIntervalMillis,
+                fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        System.out.println("Recovered " + replayed + " temperature records from write-ahead log: " + walDirectory);
+        return replayed;
+    }
+
+    public synchronized void append(WalRecord record) throws IOException {
+        ensureOpen();
+        long recordStart = segment.position();
+        try {
+            write(encode(record));
+        } catch (IOException e) {
+            discardPartialRecord(recordStart);
+            throw e;
+        }
+        if (++unsyncedRecords >= fsyncBatchRecords) {
+            try {
+                sync();
+            } catch (IOException e) {
+                // The record itself is logged, later calls fail instead since the log can no longer be trusted
+            }
+        }
+    }
+
+    /**
+     * Writes an encoded record to the active segment, package private so tests can fail it halfway
+     */
+    void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+    }
+
+    /**
+     * Syncs and seals the current segment and starts a new one.
+     *
+     * @return sequence of the sealed segment, to be passed to {@link #deleteSegmentsUpTo}
+     * once everything it holds is durable elsewhere
+     */
+    public synchronized long rollSegment() throws IOException {
+        ensureOpen();
+        long sealedSequence = segmentSequence;
+        sync();
+        segment.close();
+        openSegment(sealedSequence + 1);
+        return sealedSequence;
+    }
+
+    public void deleteSegmentsUpTo(long sequence) throws IOException {
+        for (Path segmentPath : listSegments()) {
+            if (sequenceOf(segmentPath) <= sequence) {
+                Files.deleteIfExists(segmentPath);
+            }
+        }
+        forceDirectory(walDirectory);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        fsyncScheduler.shutdown();
+        try {
+            if (segment != null) {
+                sync();
+                segment.close();
+                segment = null;
+            }
+        } finally {
+            if (lockChannel != null) {
+                // Closing the channel releases the lock
+                lockChannel.close();
+                lockChannel = null;
+            }
+        }
+    }
+
+    /**
+     * Makes directory entries durable, which is where files created in them live until the directory is synced.
+     * Skipped where a directory can't be opened for that (e.g. Windows), but a failing sync is thrown.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Not supported on this platform, directory entries are left to the OS
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (syncFailure != null) {
+            throw new IOException("Write-ahead log stopped after a failed fsync, restart the server to recover",
+                    syncFailure);
+        }
+        if (segment == null) {
+            throw new IllegalStateException("Write-ahead log is not open, it must be recovered first and not closed");
+        }
+    }
+
+    /**
+     * Cuts a record that failed halfway off the segment, so later appends don't end up behind a torn record
+     * that recovery would stop at. If the segment can't be truncated it is sealed with the torn record as its tail.
+     */
+    private void discardPartialRecord(long recordStart) {
+        try {
+            segment.truncate(recordStart);
+            return;
+        } catch (IOException e) {
+            System.out.println("Could not truncate partial write-ahead log record, sealing segment " + segmentSequence);
+            e.printStackTrace();
+        }
+        try {
+            // Keeps the records written before the torn one as durable as a regular sync would
+            segment.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            segment.close();
+            openSegment(segmentSequence + 1);
+        } catch (IOException e) {
+            String msg = "Error occurred while opening a new write-ahead log segment";
+            System.out.println(msg);
+            e.printStackTrace();
+        }
+    }
+
+    private synchronized void syncIfNeeded() {
+        try {
+            if (segment != null && unsyncedRecords > 0) {
+                sync();
+            }
+        } catch (IOException e) {
+            // Already reported when the log was stopped
+        }
+    }
+
+    private void sync() throws IOException {
+        try {
+            force();
+        } catch (IOException e) {
+            stopAfterSyncFailure(e);
+            throw e;
+        }
+        unsyncedRecords = 0;
+    }
+
+    /**
+     * Forces the active segment to disk, package private so tests can fail it
+     */
+    void force() throws IOException {
+        segment.force(false);
+    }
+
+    /**
+     * Seals the segment and rejects anything after it. Retrying the fsync could report success for pages
+     * the OS already discarded, so the unsynced records are left to be replayed from whatever reached the disk.
+     */
+    private void stopAfterSyncFailure(IOException cause) {
+        syncFailure = cause;
+        System.out.println("Write-ahead log fsync failed, sealing segment " + segmentSequence +
+                " and rejecting further appends");
+        cause.printStackTrace();
+        try {
+            segment.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        segment = null;
+    }
+
+    /**
+     * Takes exclusive ownership of the log directory, so another process can't replay or delete live segments
+     */
+    private void lockDirectory() throws IOException {
+        FileChannel channel = FileChannel.open(walDirectory.resolve(LOCK_FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        }
+        if (acquired == null) {
+            channel.close();
+            throw new IllegalStateException("Write-ahead log directory is already in use by another process: " +
+                    walDirectory);
+        }
+        // Held by the channel until close()
+        lockChannel = channel;
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        segment = FileChannel.open(segmentPath(sequence),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSequence = sequence;
+        forceDirectory(walDirectory);
+    }
+
+    private int replaySegment(Path segmentPath, RecordReplay replay) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer content = ByteBuffer.allocate((int) channel.size());
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // read the whole segment
+            }
+            content.flip();
+            int replayed = 0;
+            long validBytes = 0;
+            WalRecord record;
+            while ((record = decode(content)) != null) {
+                replay.replay(record);
+                replayed++;
+                validBytes = content.position();
+            }
+            if (validBytes < channel.size()) {
+                System.out.println("Truncating torn write-ahead log tail of " + (channel.size() - validBytes) +
+                        " bytes in: " + segmentPath);
+                channel.truncate(validBytes);
+                channel.force(true);
+            }
+            return replayed;
+        }
+    }
+
+    private static ByteBuffer encode(WalRecord record) {
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_BYTES)
+                .putLong(record.getTimestampMillis())
+                .putLong(record.getSensorId())
+                .putShort(record.getTemp());
+        payload.flip();
+        return ByteBuffer.allocate(HEADER_BYTES + PAYLOAD_BYTES)
+                .putInt(PAYLOAD_BYTES)
+                .putInt(checksum(payload.duplicate()))
+                .put(payload)
+                .flip();
+    }
+
+    /**
+     * Reads the next record, or returns null and leaves the position untouched when what follows
+     * is incomplete or fails its checksum
+     */
+    private static WalRecord decode(ByteBuffer content) {
+        if (content.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int start = content.position();
+        int length = content.getInt(start);
+        int expectedChecksum = content.getInt(start + Integer.BYTES);
+        if (length != PAYLOAD_BYTES || content.remaining() < HEADER_BYTES + length) {
+            return null;
+        }
+        ByteBuffer payload = content.duplicate();
+        payload.position(start + HEADER_BYTES).limit(start + HEADER_BYTES + length);
+        if (checksum(payload.duplicate()) != expectedChecksum) {
+            return null;
+        }
+        content.position(start + HEADER_BYTES + length);
+        return new WalRecord(payload.getLong(), payload.getLong(), payload.getShort());
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(walDirectory)) {
+            return files
+                    .filter(path -> SEGMENT_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return walDirectory.resolve(String.format("wal-%020d.log", sequence));
+    }
+
+    private static long sequenceOf(Path segmentPath) {
+        Matcher matcher = SEGMENT_NAME.matcher(segmentPath.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a write-ahead log segment: " + segmentPath);
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+}
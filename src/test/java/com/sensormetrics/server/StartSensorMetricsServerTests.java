@@ -1,11 +1,28 @@
 package com.sensormetrics.server;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
 
 @SpringBootTest
+// Closes the context, and with it the write-ahead log, before the temporary store is deleted
+@DirtiesContext
 class StartSensorMetricsServerTests {
 
+    @TempDir
+    static Path storeDirectory;
+
+    @DynamicPropertySource
+    static void storeProperties(DynamicPropertyRegistry registry) {
+        // Keeps the test away from the real store, and from the write-ahead log of a server running locally
+        registry.add("sensordata.path", storeDirectory::toString);
+    }
+
     @Test
     void contextLoads() {
     }
@@ -0,0 +1,81 @@
+package com.sensormetrics.server.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTests {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 0; value < 16; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(7, histogram.getValueAtPercentile(50));
+        assertEquals(15, histogram.getValueAtPercentile(100));
+        assertEquals(0, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    void percentileIsUpperBoundOfBucketAcrossEdges() {
+        // 16 and 31 are the edges of the first linear-width power of two, 32/33 share a bucket from there on
+        assertEquals(16, lowerHalfPercentile(16));
+        assertEquals(31, lowerHalfPercentile(31));
+        assertEquals(33, lowerHalfPercentile(32));
+        assertEquals(33, lowerHalfPercentile(33));
+        assertEquals(35, lowerHalfPercentile(34));
+        assertEquals(1023, lowerHalfPercentile(1000));
+        assertEquals(1087, lowerHalfPercentile(1024));
+    }
+
+    @Test
+    void percentileIsWithinBucketPrecision() {
+        for (long value = 1; value < 10_000_000_000L; value = value * 3 / 2 + 1) {
+            long reported = lowerHalfPercentile(value);
+            assertTrue(reported >= value, "value " + value + " reported as " + reported);
+            assertTrue(reported <= value + value / 16, "value " + value + " reported as " + reported);
+        }
+    }
+
+    @Test
+    void percentileIsCappedByMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+
+        assertEquals(1000, histogram.getValueAtPercentile(50));
+        assertEquals(1000, histogram.getValueAtPercentile(99));
+        assertEquals(1000, histogram.getMax());
+    }
+
+    @Test
+    void negativeValuesAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+
+    /**
+     * Records the value next to a much larger one, so the percentile lands on the value's bucket without the max cap
+     */
+    private long lowerHalfPercentile(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(Long.MAX_VALUE / 4);
+        return histogram.getValueAtPercentile(50);
+    }
+}
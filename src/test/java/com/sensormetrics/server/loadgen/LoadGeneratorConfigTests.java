@@ -0,0 +1,71 @@
+package com.sensormetrics.server.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoadGeneratorConfigTests {
+
+    @Test
+    void defaultsWithoutArguments() {
+        LoadGeneratorConfig config = LoadGeneratorConfig.fromArgs(new String[0]);
+
+        assertEquals("http://localhost:8080", config.baseUrl);
+        assertEquals(100, config.sensors);
+        assertEquals(LoadGeneratorConfig.Arrival.POISSON, config.arrival);
+        assertNull(config.seed);
+        assertNull(config.jmxUrl);
+    }
+
+    @Test
+    void parsesArguments() {
+        LoadGeneratorConfig config = LoadGeneratorConfig.fromArgs(new String[]{
+                "--sensors=10", "--rate-per-sensor=2.5", "--arrival=constant", "--temp-distribution=uniform",
+                "--burst-probability=0.1", "--late-fraction=0.2", "--seed=42", "--base-url=http://host:9090",
+                "--jmx-url=service:jmx:rmi:///jndi/rmi://host:9010/jmxrmi"});
+
+        assertEquals(10, config.sensors);
+        assertEquals(2.5, config.ratePerSensor);
+        assertEquals(LoadGeneratorConfig.Arrival.CONSTANT, config.arrival);
+        assertEquals(LoadGeneratorConfig.TempDistribution.UNIFORM, config.tempDistribution);
+        assertEquals(0.1, config.burstProbability);
+        assertEquals(0.2, config.lateFraction);
+        assertEquals(42L, config.seed);
+        assertEquals("http://host:9090", config.baseUrl);
+        assertEquals("service:jmx:rmi:///jndi/rmi://host:9010/jmxrmi", config.jmxUrl);
+    }
+
+    @Test
+    void embeddedTargetsItsOwnPort() {
+        LoadGeneratorConfig config = LoadGeneratorConfig.fromArgs(new String[]{"--embedded=true", "--port=9191"});
+
+        assertEquals("http://localhost:9191", config.baseUrl);
+    }
+
+    @Test
+    void rejectsMalformedArguments() {
+        assertRejected("sensors=10");
+        assertRejected("--sensors");
+        assertRejected("--sensors=ten");
+        assertRejected("--arrival=bursty");
+    }
+
+    @Test
+    void rejectsOutOfRangeValues() {
+        assertRejected("--sensors=0");
+        assertRejected("--sensors=101");
+        assertRejected("--rate-per-sensor=0");
+        assertRejected("--duration-seconds=-1");
+        assertRejected("--temp-min=30", "--temp-max=10");
+        assertRejected("--burst-probability=1.5");
+        assertRejected("--late-fraction=-0.1");
+        assertRejected("--threads=0");
+        assertRejected("--query-rate=-1");
+    }
+
+    private void assertRejected(String... args) {
+        assertThrows(IllegalArgumentException.class, () -> LoadGeneratorConfig.fromArgs(args));
+    }
+}
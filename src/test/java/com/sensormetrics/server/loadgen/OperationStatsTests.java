@@ -0,0 +1,91 @@
+package com.sensormetrics.server.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OperationStatsTests {
+
+    @Test
+    void rollIntervalStartsNewIntervalAndKeepsTotals() {
+        OperationStats stats = new OperationStats("ingest");
+        stats.recordSuccess(1000);
+        stats.recordError(3000);
+        stats.recordSkipped(5000);
+
+        OperationStats.Snapshot first = stats.rollInterval(2);
+        stats.recordSuccess(2000);
+        OperationStats.Snapshot second = stats.rollInterval(2);
+        OperationStats.Snapshot total = stats.total(4);
+
+        assertEquals(3, first.count);
+        assertEquals(1, first.errors);
+        assertEquals(1, first.skipped);
+        assertEquals(1.0, first.throughput);
+        assertEquals(2 / 3.0, first.getFailureRate());
+        assertEquals(5.0, first.maxMillis);
+        assertEquals(1, second.count);
+        assertEquals(0, second.errors);
+        assertEquals(0, second.skipped);
+        assertEquals(4, total.count);
+        assertEquals(1, total.errors);
+        assertEquals(1, total.skipped);
+        assertEquals(0.5, total.getFailureRate());
+    }
+
+    @Test
+    void skippedRequestsFailTheRunEvenWithoutErrors() {
+        OperationStats stats = new OperationStats("ingest");
+        stats.recordSuccess(1000);
+        for (int i = 0; i < 9; i++) {
+            stats.recordSkipped(5_000_000);
+        }
+
+        OperationStats.Snapshot total = stats.total(1);
+
+        assertEquals(0, total.errors);
+        assertEquals(0.9, total.getFailureRate());
+        assertEquals(5000.0, total.p99Millis);
+        assertEquals(1.0, total.throughput);
+    }
+
+    @Test
+    void emptyIntervalHasNoFailureRate() {
+        OperationStats.Snapshot snapshot = new OperationStats("daily").rollInterval(0);
+
+        assertEquals(0, snapshot.count);
+        assertEquals(0, snapshot.throughput);
+        assertEquals(0, snapshot.getFailureRate());
+    }
+
+    @Test
+    void totalsKeepSamplesRecordedDuringRollover() throws InterruptedException {
+        OperationStats stats = new OperationStats("ingest");
+        int writers = 4;
+        int samplesPerWriter = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        for (int i = 0; i < writers; i++) {
+            executor.execute(() -> {
+                for (int sample = 0; sample < samplesPerWriter; sample++) {
+                    stats.recordError(sample);
+                }
+            });
+        }
+        long rolledCount = 0;
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+            rolledCount += stats.rollInterval(1).count;
+        }
+        rolledCount += stats.rollInterval(1).count;
+
+        OperationStats.Snapshot total = stats.total(1);
+        assertEquals(writers * samplesPerWriter, total.count);
+        assertEquals(writers * samplesPerWriter, total.errors);
+        assertTrue(rolledCount <= total.count);
+    }
+}
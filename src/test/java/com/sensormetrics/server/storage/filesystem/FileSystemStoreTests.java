@@ -0,0 +1,121 @@
+package com.sensormetrics.server.storage.filesystem;
+
+import com.sensormetrics.server.models.HourlyTempModel;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileSystemStoreTests {
+
+    private static final long CHECKPOINT_INTERVAL_SECONDS = 3600;
+
+    @TempDir
+    Path storeDirectory;
+
+    @Test
+    void recoveryReplaysReadingsIntoTheirRecordedHour() throws Exception {
+        long timestamp = LocalDateTime.of(2021, 11, 3, 14, 25)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        WriteAheadLog wal = newWal();
+        wal.recover(record -> {
+        });
+        wal.append(new WalRecord(timestamp, 7, (short) 21));
+        wal.append(new WalRecord(timestamp, 7, (short) -3));
+        // Stopped without a checkpoint, nothing reached the store yet
+        wal.close();
+
+        WriteAheadLog reopenedWal = newWal();
+        FileSystemStore store = newStore(reopenedWal);
+        store.init();
+        Map<Integer, HourlyTempModel> temps = store.getHourlyTempsBySensorIDAndDate(7, "2021-11-03");
+        store.shutdown();
+        reopenedWal.close();
+
+        assertEquals(List.of((short) -3, (short) 21), sorted(temps.get(7).getHourToTemp().get((short) 14)));
+    }
+
+    @Test
+    void savedReadingSurvivesCrashBeforeCheckpoint() throws Exception {
+        WriteAheadLog wal = newWal();
+        FileSystemStore store = newStore(wal);
+        store.init();
+        String today = LocalDate.now().toString();
+        store.saveTemperature(5, (short) 30);
+        // Crash before the next checkpoint: the log was written but the store's files never made it to disk
+        store.stopCheckpoints();
+        wal.close();
+        FileUtils.deleteDirectory(storeDirectory.resolve("temperature").toFile());
+
+        WriteAheadLog reopenedWal = newWal();
+        FileSystemStore reopened = newStore(reopenedWal);
+        reopened.init();
+        Map<Integer, HourlyTempModel> temps = reopened.getHourlyTempsBySensorIDAndDate(5, today);
+        reopened.shutdown();
+        reopenedWal.close();
+
+        assertTrue(temps.get(5).getHourToTemp().values().stream().anyMatch(hour -> hour.contains((short) 30)));
+    }
+
+    @Test
+    void checkpointDropsLogOfStoredReadings() throws Exception {
+        WriteAheadLog wal = newWal();
+        FileSystemStore store = newStore(wal);
+        store.init();
+        store.saveTemperature(5, (short) 30);
+        store.shutdown();
+        wal.close();
+
+        try (Stream<Path> segments = Files.list(storeDirectory.resolve("wal"))) {
+            // Only the segment opened by the last checkpoint, which holds nothing
+            assertEquals(1, segments.filter(path -> path.getFileName().toString().endsWith(".log")).count());
+        }
+        WriteAheadLog reopenedWal = newWal();
+        assertEquals(0, reopenedWal.recover(record -> {
+        }));
+        reopenedWal.close();
+    }
+
+    @Test
+    void strayFilesAreSkipped() throws Exception {
+        Path dateDirectory = storeDirectory.resolve("temperature").resolve("3").resolve("2021-11-03");
+        Files.createDirectories(dateDirectory.resolve("9"));
+        Files.createFile(dateDirectory.resolve("9").resolve("25"));
+        Files.createFile(dateDirectory.resolve("9").resolve("notes.txt"));
+        Files.createFile(dateDirectory.resolve(".DS_Store"));
+        WriteAheadLog wal = newWal();
+        FileSystemStore store = newStore(wal);
+        store.init();
+
+        Map<Integer, HourlyTempModel> temps = store.getHourlyTempsBySensorIDAndDate(3, "2021-11-03");
+        store.shutdown();
+        wal.close();
+
+        assertEquals(1, temps.get(3).getHourToTemp().size());
+        assertEquals(List.of((short) 25), temps.get(3).getHourToTemp().get((short) 9));
+    }
+
+    private WriteAheadLog newWal() {
+        return new WriteAheadLog(storeDirectory.resolve("wal").toString(), 10_000, 100);
+    }
+
+    private FileSystemStore newStore(WriteAheadLog wal) {
+        return new FileSystemStore(wal, storeDirectory.toString(), CHECKPOINT_INTERVAL_SECONDS);
+    }
+
+    private List<Short> sorted(List<Short> temps) {
+        return temps.stream().sorted().collect(Collectors.toList());
+    }
+}
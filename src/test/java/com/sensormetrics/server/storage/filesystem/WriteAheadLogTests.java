@@ -0,0 +1,234 @@
+package com.sensormetrics.server.storage.filesystem;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WriteAheadLogTests {
+
+    @TempDir
+    Path walDirectory;
+
+    @Test
+    void recoverReplaysAppendedRecords() throws IOException {
+        WriteAheadLog wal = newWal();
+        wal.recover(record -> {
+        });
+        wal.append(new WalRecord(1000L, 7, (short) 21));
+        wal.append(new WalRecord(2000L, 8, (short) -5));
+        wal.close();
+
+        List<WalRecord> replayed = new ArrayList<>();
+        WriteAheadLog reopened = newWal();
+        assertEquals(2, reopened.recover(replayed::add));
+        reopened.close();
+
+        assertEquals(8, replayed.get(1).getSensorId());
+        assertEquals(-5, replayed.get(1).getTemp());
+        assertEquals(2000L, replayed.get(1).getTimestampMillis());
+    }
+
+    @Test
+    void recoverTruncatesTornTail() throws IOException {
+        WriteAheadLog wal = newWal();
+        wal.recover(record -> {
+        });
+        wal.append(new WalRecord(1000L, 7, (short) 21));
+        wal.append(new WalRecord(2000L, 8, (short) 22));
+        wal.close();
+        Path segment = listSegments().get(0);
+        long validSize = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // Part of a third record, as left by a crash mid-write
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 18, 1, 2, 3}), validSize);
+        }
+
+        WriteAheadLog reopened = newWal();
+        assertEquals(2, reopened.recover(record -> {
+        }));
+        reopened.close();
+
+        assertEquals(validSize, Files.size(segment));
+    }
+
+    @Test
+    void recoverStopsAtCorruptedRecord() throws IOException {
+        WriteAheadLog wal = newWal();
+        wal.recover(record -> {
+        });
+        wal.append(new WalRecord(1000L, 7, (short) 21));
+        wal.append(new WalRecord(2000L, 8, (short) 22));
+        wal.close();
+        Path segment = listSegments().get(0);
+        long recordSize = Files.size(segment) / 2;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // Flip the temperature of the second record so its checksum no longer matches
+            channel.write(ByteBuffer.wrap(new byte[]{99}), recordSize * 2 - 1);
+        }
+
+        List<WalRecord> replayed = new ArrayList<>();
+        WriteAheadLog reopened = newWal();
+        assertEquals(1, reopened.recover(replayed::add));
+        reopened.close();
+
+        assertEquals(7, replayed.get(0).getSensorId());
+        assertEquals(recordSize, Files.size(segment));
+    }
+
+    @Test
+    void failedAppendDoesNotHideLaterRecords() throws IOException {
+        FailingWriteAheadLog wal = new FailingWriteAheadLog(walDirectory.toString());
+        wal.recover(record -> {
+        });
+        wal.append(new WalRecord(1000L, 1, (short) 21));
+        wal.failNextWrite = true;
+        assertThrows(IOException.class, () -> wal.append(new WalRecord(2000L, 2, (short) 22)));
+        wal.append(new WalRecord(3000L, 3, (short) 23));
+        wal.append(new WalRecord(4000L, 4, (short) 24));
+        wal.close();
+
+        List<WalRecord> replayed = new ArrayList<>();
+        WriteAheadLog reopened = newWal();
+        assertEquals(3, reopened.recover(replayed::add));
+        reopened.close();
+
+        assertEquals(List.of(1L, 3L, 4L), replayed.stream().map(WalRecord::getSensorId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void failedSyncStopsTheLogWithoutFailingLoggedRecord() throws IOException {
+        FailingWriteAheadLog wal = new FailingWriteAheadLog(walDirectory.toString(), 2);
+        wal.recover(record -> {
+        });
+        wal.append(new WalRecord(1000L, 1, (short) 21));
+        wal.failNextForce = true;
+        // Reaches the batch size, its fsync fails but the record is already logged
+        wal.append(new WalRecord(2000L, 2, (short) 22));
+
+        assertThrows(IOException.class, () -> wal.append(new WalRecord(3000L, 3, (short) 23)));
+        assertThrows(IOException.class, wal::rollSegment);
+        assertEquals(0, wal.forceRetries);
+        wal.close();
+
+        List<WalRecord> replayed = new ArrayList<>();
+        WriteAheadLog reopened = newWal();
+        assertEquals(2, reopened.recover(replayed::add));
+        reopened.close();
+
+        assertEquals(List.of(1L, 2L), replayed.stream().map(WalRecord::getSensorId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void directoryInUseIsRejected() throws IOException {
+        WriteAheadLog wal = newWal();
+        wal.recover(record -> {
+        });
+        wal.append(new WalRecord(1000L, 7, (short) 21));
+
+        WriteAheadLog second = newWal();
+        assertThrows(IllegalStateException.class, () -> second.recover(record -> {
+        }));
+        wal.close();
+
+        WriteAheadLog reopened = newWal();
+        assertEquals(1, reopened.recover(record -> {
+        }));
+        reopened.close();
+    }
+
+    @Test
+    void closedLogRejectsRollingSegment() throws IOException {
+        WriteAheadLog wal = newWal();
+        wal.recover(record -> {
+        });
+        wal.close();
+
+        assertThrows(IllegalStateException.class, wal::rollSegment);
+    }
+
+    @Test
+    void deleteSegmentsUpToDropsSealedSegments() throws IOException {
+        WriteAheadLog wal = newWal();
+        wal.recover(record -> {
+        });
+        wal.append(new WalRecord(1000L, 7, (short) 21));
+        long sealed = wal.rollSegment();
+        wal.append(new WalRecord(2000L, 8, (short) 22));
+        wal.deleteSegmentsUpTo(sealed);
+        wal.close();
+
+        List<WalRecord> replayed = new ArrayList<>();
+        WriteAheadLog reopened = newWal();
+        reopened.recover(replayed::add);
+        reopened.close();
+
+        assertEquals(1, replayed.size());
+        assertEquals(8, replayed.get(0).getSensorId());
+    }
+
+    /**
+     * Fails a write halfway, as a full disk would, or fails an fsync, as an I/O error would
+     */
+    private static class FailingWriteAheadLog extends WriteAheadLog {
+
+        boolean failNextWrite;
+        boolean failNextForce;
+        int forceRetries;
+        private boolean forceFailed;
+
+        FailingWriteAheadLog(String walPath) {
+            this(walPath, 100);
+        }
+
+        FailingWriteAheadLog(String walPath, int fsyncBatchRecords) {
+            super(walPath, 10_000, fsyncBatchRecords);
+        }
+
+        @Override
+        void force() throws IOException {
+            if (forceFailed) {
+                forceRetries++;
+            }
+            if (failNextForce) {
+                failNextForce = false;
+                forceFailed = true;
+                throw new IOException("Input/output error");
+            }
+            super.force();
+        }
+
+        @Override
+        void write(ByteBuffer buffer) throws IOException {
+            if (failNextWrite) {
+                failNextWrite = false;
+                buffer.limit(buffer.position() + 10);
+                super.write(buffer);
+                throw new IOException("No space left on device");
+            }
+            super.write(buffer);
+        }
+    }
+
+    private WriteAheadLog newWal() {
+        return new WriteAheadLog(walDirectory.toString(), 10_000, 100);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(walDirectory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+}